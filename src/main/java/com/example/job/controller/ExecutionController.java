@@ -4,6 +4,7 @@ import com.example.job.domain.Execution;
 import com.example.job.dao.ExecutionRepository;
 import com.example.job.dao.JobRepository;
 import com.example.job.service.JobService;
+import com.example.job.service.JobStatsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
@@ -24,10 +25,13 @@ public class ExecutionController {
 
     private ExecutionRepository executionRepository;
     private JobRepository jobRepository;
+    private JobStatsService jobStatsService;
 
-    public ExecutionController(ExecutionRepository executionRepository, JobRepository jobRepository) {
+    public ExecutionController(ExecutionRepository executionRepository, JobRepository jobRepository,
+                               JobStatsService jobStatsService) {
         this.executionRepository = executionRepository;
         this.jobRepository = jobRepository;
+        this.jobStatsService = jobStatsService;
     }
 
     //took away 404 response as it would flood console for not-yet executed jobs
@@ -65,6 +69,7 @@ public class ExecutionController {
         }
 
         executionRepository.deleteAll(executions);
+        jobStatsService.reset(jid);
         log.trace("deleteExecutionsOfJob(): deleting all executions of job with id="+jid);
         return ResponseEntity.noContent().build();
     }
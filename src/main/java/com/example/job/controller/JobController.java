@@ -1,14 +1,20 @@
 package com.example.job.controller;
 
 import com.example.job.domain.Job;
+import com.example.job.domain.JobStats;
 import com.example.job.dao.JobRepository;
 import com.example.job.service.JobService;
+import com.example.job.service.FireTimeService;
+import com.example.job.service.JobStatsService;
+import com.example.job.service.ScheduleForecast;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.List;
 import io.swagger.annotations.*;
@@ -25,10 +31,15 @@ public class JobController {
     //spring team itself recommends constructor injection to be able to use final
     private final JobRepository jobRepository;
     private final JobService jobService;
+    private final JobStatsService jobStatsService;
+    private final FireTimeService fireTimeService;
 
-    public JobController(JobRepository jobRepository, JobService jobService) {
+    public JobController(JobRepository jobRepository, JobService jobService, JobStatsService jobStatsService,
+                         FireTimeService fireTimeService) {
         this.jobRepository = jobRepository;
         this.jobService = jobService;
+        this.jobStatsService = jobStatsService;
+        this.fireTimeService = fireTimeService;
     }
 
     @GetMapping
@@ -44,6 +55,28 @@ public class JobController {
     }
 
 
+    //literal path wins over /{jid}, so no clash with getJobById
+    @GetMapping("/forecast")
+    @ApiOperation(value = "Forecast job fire times", notes = "Gets the upcoming fire times of all enabled jobs and the number of starts per time bucket")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Forecast received successfully"),
+            @ApiResponse(code = 400, message = "Invalid forecast window")
+    })
+    public ResponseEntity<?> getForecast(@RequestParam(defaultValue = "3600") long windowSeconds,
+                                         @RequestParam(defaultValue = "60") long bucketSeconds,
+                                         @RequestParam(defaultValue = "100") int maxFiresPerJob) {
+        //bounded so a single request can't walk cron expressions for weeks of every-second jobs
+        if (windowSeconds <= 0 || windowSeconds > 7 * 24 * 3600 || bucketSeconds <= 0
+                || windowSeconds / bucketSeconds > 10000 || maxFiresPerJob <= 0 || maxFiresPerJob > 10000) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("getForecast(): window must be 1s-7d, at most 10000 buckets and 1-10000 fires per job");
+        }
+        ScheduleForecast forecast = fireTimeService.forecast(jobRepository.findAll(), LocalDateTime.now(),
+                Duration.ofSeconds(windowSeconds), Duration.ofSeconds(bucketSeconds), maxFiresPerJob);
+        log.trace("getForecast(): forecasting fire times for the next " + windowSeconds + "s");
+        return ResponseEntity.ok(forecast);
+    }
+
     @GetMapping("/{jid}")
     @ApiOperation(value = "Gets job by ID", notes = "Gets a job with the given ID")
     @ApiResponses(value = {
@@ -100,6 +133,11 @@ public class JobController {
         existingJob.setStatus(job.isStatus());
         existingJob.setStartDate(job.getStartDate());
         existingJob.setEndDate(job.getEndDate());
+        existingJob.setMisfirePolicy(job.getMisfirePolicy());
+        existingJob.setPriority(job.getPriority());
+        existingJob.setTaskName(job.getTaskName());
+        existingJob.setTimeoutSeconds(job.getTimeoutSeconds());
+        existingJob.setSpreadSeconds(job.getSpreadSeconds());
         Job updatedJob = jobRepository.save(existingJob);
         log.trace("updateJob(): updating job: id="+jid);
         return new ResponseEntity<>(updatedJob, HttpStatus.OK);
@@ -147,6 +185,7 @@ public class JobController {
         }
 
         jobRepository.delete(jobOptional.get());
+        jobStatsService.reset(jid);
         log.trace("deleteJob(): deleting job: id="+jid);
         return ResponseEntity.noContent().build();
     }
@@ -165,4 +204,32 @@ public class JobController {
         }
     }
 
+    @PostMapping("/{jid}/cancel")
+    @ApiOperation(value = "Cancel running job by ID", notes = "Stops all running executions of the job with the given ID")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Job cancelled successfully"),
+            @ApiResponse(code = 404, message = "No running execution found")
+    })
+    public ResponseEntity<?> cancelJob(@PathVariable long jid) {
+        return jobService.cancelJob(jid);
+    }
+
+    //stats are kept up to date while jobs run, so this doesn't need to go through the execution history
+    @GetMapping("/{jid}/stats")
+    @ApiOperation(value = "Get execution stats of a job by ID", notes = "Gets run count, failures and duration percentiles of the job with the given ID")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Job stats received successfully"),
+            @ApiResponse(code = 404, message = "Job not found")
+    })
+    public ResponseEntity<?> getJobStats(@PathVariable long jid) {
+        if (!jobRepository.existsById(jid)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("getJobStats(): No job found with id: " + jid);
+        }
+        //job that never ran yet -> empty stats instead of 404
+        JobStats stats = jobStatsService.getStats(jid).orElseGet(() -> new JobStats(jid));
+        log.trace("getJobStats(): getting stats of job: id="+jid);
+        return ResponseEntity.ok(stats);
+    }
+
 }
@@ -15,5 +15,17 @@ public interface ExecutionRepository extends JpaRepository<Execution, Long> {
     @Query("SELECT e FROM Execution e WHERE e.job.id = :jobId")
     List<Execution> findByJobJid(@Param("jobId") Long jobId);
 
+    boolean existsByRunId(Long runId);
+
+    //one row for the whole history, used to seed the job stats instead of loading every execution
+    //excludeId leaves out the execution being recorded right now, it is counted by the stats themselves
+    @Query("SELECT COUNT(e) AS runCount, " +
+            "SUM(CASE WHEN e.success = false THEN 1 ELSE 0 END) AS failureCount, " +
+            "MAX(CASE WHEN e.success = true THEN e.endTime END) AS lastSuccessTime, " +
+            "MAX(CASE WHEN e.success = false THEN e.endTime END) AS lastFailureTime, " +
+            "SUM(LENGTH(e.output)) AS totalOutputSize " +
+            "FROM Execution e WHERE e.job.id = :jobId AND e.id <> :excludeId")
+    ExecutionSummary summarizeByJobJid(@Param("jobId") Long jobId, @Param("excludeId") Long excludeId);
+
 }
 
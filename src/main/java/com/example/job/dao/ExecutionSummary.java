@@ -0,0 +1,18 @@
+package com.example.job.dao;
+
+import java.time.LocalDateTime;
+
+// aggregate over all executions of one job, see ExecutionRepository.summarizeByJobJid
+// sums are Number since the result type of SUM depends on the database
+public interface ExecutionSummary {
+
+    Long getRunCount();
+
+    Number getFailureCount();
+
+    LocalDateTime getLastSuccessTime();
+
+    LocalDateTime getLastFailureTime();
+
+    Number getTotalOutputSize();
+}
@@ -0,0 +1,9 @@
+package com.example.job.dao;
+
+import com.example.job.domain.JobStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface JobStatsRepository extends JpaRepository<JobStats, Long> {
+}
@@ -23,6 +23,9 @@ public class Execution {
     private LocalDateTime startTime;
     private LocalDateTime endTime;
 
+    //dispatch journal run the execution belongs to, tells finished runs from lost ones on restart
+    private Long runId;
+
     //FetchType.LAZY could be better? but running into errors with it
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "jobId", referencedColumnName = "id")
@@ -52,6 +55,14 @@ public class Execution {
         this.job = job;
     }
 
+    public Long getRunId() {
+        return runId;
+    }
+
+    public void setRunId(Long runId) {
+        this.runId = runId;
+    }
+
     public Job getJob() {
         return job;
     }
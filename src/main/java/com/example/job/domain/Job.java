@@ -50,6 +50,27 @@ public class Job {
     @Column(name = "cronExpression")
     private String cronExpression;
 
+    //null is treated as SKIP, so existing jobs keep their behaviour
+    @Enumerated(EnumType.STRING)
+    @Column(name = "misfirePolicy", length = 20)
+    private MisfirePolicy misfirePolicy;
+
+    //higher runs first when the host is busy and dispatches have to wait, null counts as 0
+    @Column(name = "priority")
+    private Integer priority;
+
+    //bean name of a JobTask to run inside the scheduler instead of the command
+    @Column(name = "taskName", length = 100)
+    private String taskName;
+
+    //run gets killed / interrupted after this many seconds, null means no timeout
+    @Column(name = "timeoutSeconds")
+    private Integer timeoutSeconds;
+
+    //opt-in: fire up to this many seconds after the cron time, fixed per job (see FireTimeService)
+    @Column(name = "spreadSeconds")
+    private Integer spreadSeconds;
+
     @JsonIgnore
     @OneToMany(mappedBy = "job", cascade = CascadeType.ALL)
     private List<Execution> history;
@@ -137,6 +158,46 @@ public class Job {
         this.endDate = endDate;
     }
 
+    public MisfirePolicy getMisfirePolicy() {
+        return misfirePolicy;
+    }
+
+    public void setMisfirePolicy(MisfirePolicy misfirePolicy) {
+        this.misfirePolicy = misfirePolicy;
+    }
+
+    public int getPriority() {
+        return priority == null ? 0 : priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    public void setTaskName(String taskName) {
+        this.taskName = taskName;
+    }
+
+    public Integer getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public void setTimeoutSeconds(Integer timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public Integer getSpreadSeconds() {
+        return spreadSeconds;
+    }
+
+    public void setSpreadSeconds(Integer spreadSeconds) {
+        this.spreadSeconds = spreadSeconds;
+    }
+
     public List<Execution> getHistory() {
         return history;
     }
@@ -0,0 +1,158 @@
+package com.example.job.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// rollup of all executions of one job, kept up to date as executions finish
+// so stats can be read without loading the whole execution history
+// no relation to the job entity on purpose: stats are written in the background and
+// should not be loaded (or cascaded) together with a job
+@Entity
+@Table(name = "jobStats")
+public class JobStats {
+
+    @Id
+    @Column(name = "jobId")
+    private Long jobId;
+
+    private Long runCount;
+    private Long failureCount;
+
+    private LocalDateTime lastSuccessTime;
+    private LocalDateTime lastFailureTime;
+
+    // sum of output lengths, average can be computed with runCount
+    private Long totalOutputSize;
+
+    // duration percentiles in ms, computed from the histogram on every flush
+    private Long p50Duration;
+    private Long p95Duration;
+    private Long p99Duration;
+
+    // serialized DurationHistogram, only needed to restore the in-memory state after a restart
+    @JsonIgnore
+    @Column(name = "durationHistogram", length = 4000)
+    private String durationHistogram;
+
+    private LocalDateTime updatedAt;
+
+    public JobStats() {
+    }
+
+    public JobStats(Long jobId) {
+        this.jobId = jobId;
+        this.runCount = 0L;
+        this.failureCount = 0L;
+        this.totalOutputSize = 0L;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public Long getRunCount() {
+        return runCount;
+    }
+
+    public void setRunCount(Long runCount) {
+        this.runCount = runCount;
+    }
+
+    public Long getFailureCount() {
+        return failureCount;
+    }
+
+    public void setFailureCount(Long failureCount) {
+        this.failureCount = failureCount;
+    }
+
+    public LocalDateTime getLastSuccessTime() {
+        return lastSuccessTime;
+    }
+
+    public void setLastSuccessTime(LocalDateTime lastSuccessTime) {
+        this.lastSuccessTime = lastSuccessTime;
+    }
+
+    public LocalDateTime getLastFailureTime() {
+        return lastFailureTime;
+    }
+
+    public void setLastFailureTime(LocalDateTime lastFailureTime) {
+        this.lastFailureTime = lastFailureTime;
+    }
+
+    public Long getTotalOutputSize() {
+        return totalOutputSize;
+    }
+
+    public void setTotalOutputSize(Long totalOutputSize) {
+        this.totalOutputSize = totalOutputSize;
+    }
+
+    public Long getP50Duration() {
+        return p50Duration;
+    }
+
+    public void setP50Duration(Long p50Duration) {
+        this.p50Duration = p50Duration;
+    }
+
+    public Long getP95Duration() {
+        return p95Duration;
+    }
+
+    public void setP95Duration(Long p95Duration) {
+        this.p95Duration = p95Duration;
+    }
+
+    public Long getP99Duration() {
+        return p99Duration;
+    }
+
+    public void setP99Duration(Long p99Duration) {
+        this.p99Duration = p99Duration;
+    }
+
+    public String getDurationHistogram() {
+        return durationHistogram;
+    }
+
+    public void setDurationHistogram(String durationHistogram) {
+        this.durationHistogram = durationHistogram;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    // success rate between 0 and 1, derived so it doesn't need its own column
+    public Double getSuccessRate() {
+        if (runCount == null || runCount == 0) return null;
+        return (double) (runCount - failureCount) / runCount;
+    }
+
+    @Override
+    public String toString() {
+        return "JobStats{" +
+                "jobId=" + jobId +
+                ", runCount=" + runCount +
+                ", failureCount=" + failureCount +
+                ", lastSuccessTime=" + lastSuccessTime +
+                ", lastFailureTime=" + lastFailureTime +
+                ", p50Duration=" + p50Duration +
+                ", p95Duration=" + p95Duration +
+                ", p99Duration=" + p99Duration +
+                '}';
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.job.domain;
+
+// what to do with a run that got lost because the scheduler stopped while the job was running
+// SKIP: only record the lost run as failed execution, job runs again on its next cron time
+// RERUN: record the lost run and run the job once more right after startup
+public enum MisfirePolicy {
+    SKIP,
+    RERUN
+}
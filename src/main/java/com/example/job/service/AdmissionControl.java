@@ -0,0 +1,178 @@
+package com.example.job.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+// decides if a due job may be dispatched now or has to wait for a later check
+// - host state (load average, free memory, runnable processes) is sampled once per scheduler check
+// - the number of jobs running at the same time is capped by an adaptive limit (AIMD):
+//   every job finishing in its usual time raises the limit a bit (+1 per limit completions),
+//   a job taking much longer than its median or an overloaded sample shrinks it by 10%,
+//   at most once per decrease interval so a burst of slow completions doesn't pin it to the minimum
+// - jobs that had to wait gain priority over time (aging), so low priority jobs can't starve
+// this keeps the box below the point where everything slows down together
+@Component
+public class AdmissionControl {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControl.class);
+
+    private static final Path LOADAVG = Paths.get("/proc/loadavg");
+    private static final Path MEMINFO = Paths.get("/proc/meminfo");
+
+    // the interval usually equals the scheduler period, so a check running a little early
+    // must still count as a full interval, otherwise every other decrease gets skipped
+    private static final long DECREASE_SLACK_MILLIS = 500;
+
+    private final JobStatsService jobStatsService;
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    private final int cores = Runtime.getRuntime().availableProcessors();
+
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final double maxLoadPerCore;
+    private final long minFreeMemoryBytes;
+    private final double latencyTolerance;
+    private final long decreaseIntervalMillis;
+    private final long agingSeconds;
+    private final LongSupplier clock;
+
+    private double limit;
+    private int inFlight;
+    private boolean overloaded;
+    private long lastDecrease = Long.MIN_VALUE;
+
+    @Autowired
+    public AdmissionControl(JobStatsService jobStatsService,
+                            @Value("${job.admission.min-concurrency:1}") int minConcurrency,
+                            @Value("${job.admission.max-concurrency:64}") int maxConcurrency,
+                            @Value("${job.admission.max-load-per-core:1.5}") double maxLoadPerCore,
+                            @Value("${job.admission.min-free-memory-mb:256}") long minFreeMemoryMb,
+                            @Value("${job.admission.latency-tolerance:2.0}") double latencyTolerance,
+                            @Value("${job.admission.decrease-interval-ms:5000}") long decreaseIntervalMillis,
+                            @Value("${job.admission.aging-seconds:60}") long agingSeconds) {
+        // start with one job per core, the limit finds its way from there
+        this(jobStatsService, minConcurrency, maxConcurrency, maxLoadPerCore, minFreeMemoryMb, latencyTolerance,
+                decreaseIntervalMillis, agingSeconds, Runtime.getRuntime().availableProcessors(), System::currentTimeMillis);
+    }
+
+    // initialLimit / clock given explicitly, for tests
+    AdmissionControl(JobStatsService jobStatsService, int minConcurrency, int maxConcurrency, double maxLoadPerCore,
+                     long minFreeMemoryMb, double latencyTolerance, long decreaseIntervalMillis, long agingSeconds,
+                     int initialLimit, LongSupplier clock) {
+        this.jobStatsService = jobStatsService;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.maxLoadPerCore = maxLoadPerCore;
+        this.minFreeMemoryBytes = minFreeMemoryMb * 1024 * 1024;
+        this.latencyTolerance = latencyTolerance;
+        this.decreaseIntervalMillis = decreaseIntervalMillis;
+        this.agingSeconds = agingSeconds;
+        this.clock = clock;
+        this.limit = Math.max(minConcurrency, Math.min(maxConcurrency, initialLimit));
+    }
+
+    // called once at the start of every scheduler check
+    public synchronized void sample() {
+        double loadPerCore = osBean.getSystemLoadAverage() / cores;
+        long freeMemory = freeMemoryBytes();
+        int runnable = runnableProcesses();
+
+        boolean wasOverloaded = overloaded;
+        overloaded = loadPerCore > maxLoadPerCore
+                || (freeMemory >= 0 && freeMemory < minFreeMemoryBytes)
+                || runnable > cores * maxLoadPerCore;
+        if (overloaded) {
+            decrease();
+        }
+        if (overloaded != wasOverloaded) {
+            log.trace("sample(): host overloaded=" + overloaded + ", loadPerCore=" + loadPerCore
+                    + ", freeMemory=" + freeMemory + ", runnable=" + runnable + ", limit=" + (int) limit);
+        }
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) return false;
+        inFlight++;
+        return true;
+    }
+
+    // durationMillis of the finished run, compared against the job's median to see if the host keeps up
+    public synchronized void release(long jid, long durationMillis) {
+        inFlight--;
+        Long median = jobStatsService.getMedianDuration(jid);
+        // jobs without history or that take no measurable time tell nothing about the host
+        if (median == null || median == 0) return;
+
+        if (durationMillis > median * latencyTolerance) {
+            decrease();
+        } else if (!overloaded && inFlight + 1 >= (int) limit) {
+            // overloaded host only holds the limit, the decrease for it already happened in sample()
+            // only grow while the limit is actually used, otherwise it drifts up without being tested
+            limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    // priority used to order due jobs, +1 for every agingSeconds a job has been deferred
+    public double effectivePriority(int priority, Duration deferred) {
+        if (agingSeconds <= 0) return priority;
+        return priority + (double) deferred.getSeconds() / agingSeconds;
+    }
+
+    private void decrease() {
+        long now = clock.getAsLong();
+        if (lastDecrease != Long.MIN_VALUE && now - lastDecrease < decreaseIntervalMillis - DECREASE_SLACK_MILLIS) return;
+        lastDecrease = now;
+        limit = Math.max(minConcurrency, limit * 0.9);
+    }
+
+    // MemAvailable from procfs, since "free" memory on linux leaves out the page cache
+    // falls back to the jvm's view where there is no procfs, -1 if neither can tell
+    private long freeMemoryBytes() {
+        if (Files.isReadable(MEMINFO)) {
+            try {
+                for (String line : Files.readAllLines(MEMINFO)) {
+                    if (line.startsWith("MemAvailable:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // fall through to the mx bean
+            }
+        }
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean sunOsBean) {
+            return sunOsBean.getFreeMemorySize();
+        }
+        return -1;
+    }
+
+    // 4th field of /proc/loadavg is "runnable/total" processes, 0 where there is no procfs
+    private int runnableProcesses() {
+        if (!Files.isReadable(LOADAVG)) return 0;
+        try {
+            String[] fields = Files.readString(LOADAVG).trim().split("\\s+");
+            return Integer.parseInt(fields[3].substring(0, fields[3].indexOf('/')));
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+}
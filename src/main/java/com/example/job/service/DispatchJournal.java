@@ -0,0 +1,248 @@
+package com.example.job.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// append-only local journal of dispatch / start / finish events of job runs
+// if the jvm dies mid run, the runs without a finish event are replayed on the next startup
+// so they can be reconciled (see JobService.reconcileLostRuns), which then finishes them
+//
+// record format, one line per event:
+// D|runId|jobId|dispatchEpochMillis
+// S|runId|pid
+// F|runId
+//
+// callers only enqueue records, a single writer thread appends them to a memory-mapped file
+// and forces everything it drained in one go (group commit), so dispatch never waits on fsync
+@Component
+public class DispatchJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(DispatchJournal.class);
+
+    private final Path path;
+    private final int sizeBytes;
+
+    // queued by close(), never a valid record
+    private static final String STOP = "STOP";
+
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong nextRunId = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    // runs that were still open when the journal was replayed on startup
+    private List<Run> recoveredRuns = Collections.emptyList();
+
+    // only touched by the writer thread (and startup before it runs)
+    private final Map<Long, Run> openRuns = new LinkedHashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private Thread writer;
+
+    public DispatchJournal(@Value("${job.journal.path:journal/dispatch.journal}") String path,
+                           @Value("${job.journal.size-bytes:16777216}") int sizeBytes) {
+        this.path = Paths.get(path);
+        this.sizeBytes = sizeBytes;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        if (Files.exists(path)) {
+            replay();
+            recoveredRuns = new ArrayList<>(openRuns.values());
+            if (!recoveredRuns.isEmpty()) {
+                log.warn("open(): found " + recoveredRuns.size() + " unfinished runs in dispatch journal");
+            }
+            // new run ids must not collide with the recovered ones still in the journal
+            for (Run run : recoveredRuns) {
+                nextRunId.accumulateAndGet(run.runId, Math::max);
+            }
+        }
+        // recovered runs stay in the journal until the reconciliation finished them,
+        // so a failed reconciliation or another crash during startup doesn't lose them
+        rewrite();
+
+        writer = new Thread(this::writeLoop, "dispatch-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // stops the writer through the queue instead of an interrupt, an interrupt would close the
+    // file channel if it hits the writer during a rewrite and lose the batch
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        queue.add(STOP);
+        writer.join(5000);
+        // anything enqueued after the writer stopped
+        List<String> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.remove(STOP);
+        if (!remaining.isEmpty()) append(remaining);
+        buffer.force();
+        channel.close();
+    }
+
+    public List<Run> getRecoveredRuns() {
+        return recoveredRuns;
+    }
+
+    public long dispatched(long jobId) {
+        long runId = nextRunId.incrementAndGet();
+        queue.add("D|" + runId + "|" + jobId + "|" + System.currentTimeMillis());
+        return runId;
+    }
+
+    public void started(long runId, long pid) {
+        queue.add("S|" + runId + "|" + pid);
+    }
+
+    public void finished(long runId) {
+        queue.add("F|" + runId);
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>();
+        boolean stop = false;
+        while (!stop) {
+            try {
+                batch.add(queue.take());
+                // everything that queued up while the last force was running goes into this commit
+                queue.drainTo(batch);
+                stop = batch.remove(STOP);
+                append(batch);
+                buffer.force();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.error("writeLoop(): could not write dispatch journal", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void append(List<String> records) throws IOException {
+        for (String record : records) {
+            apply(openRuns, record);
+            byte[] bytes = (record + "\n").getBytes(StandardCharsets.UTF_8);
+            if (buffer.remaining() < bytes.length) {
+                // journal full -> rewrite it with only the open runs, finished ones are not needed anymore
+                // the current record is already in openRuns, so it is part of the rewrite
+                rewrite();
+                continue;
+            }
+            buffer.put(bytes);
+        }
+    }
+
+    // writes the open runs into a fresh file and swaps it in, so a crash mid rewrite keeps the old journal
+    private void rewrite() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer tmpBuffer = tmpChannel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+            for (Run run : openRuns.values()) {
+                tmpBuffer.put(("D|" + run.runId + "|" + run.jobId + "|" + run.dispatchEpochMillis + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                if (run.pid != null) {
+                    tmpBuffer.put(("S|" + run.runId + "|" + run.pid + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            tmpBuffer.force();
+        }
+        if (channel != null) channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+        // continue after the rewritten records, the rest of the file is zeroes
+        int end = 0;
+        while (end < buffer.limit() && buffer.get(end) != 0) end++;
+        buffer.position(end);
+    }
+
+    private void replay() throws IOException {
+        byte[] content = Files.readAllBytes(path);
+        int end = 0;
+        while (end < content.length && content[end] != 0) end++;
+        // a record only counts once its newline made it to disk, anything after the last one is a torn write
+        while (end > 0 && content[end - 1] != '\n') end--;
+        String[] lines = new String(content, 0, end, StandardCharsets.UTF_8).split("\n");
+        for (String line : lines) {
+            try {
+                apply(openRuns, line);
+            } catch (RuntimeException e) {
+                log.warn("replay(): skipping unreadable journal record: " + line);
+            }
+        }
+    }
+
+    private static void apply(Map<Long, Run> runs, String record) {
+        if (record.isEmpty()) return;
+        String[] parts = record.split("\\|");
+        long runId = Long.parseLong(parts[1]);
+        switch (parts[0]) {
+            case "D" -> runs.put(runId, new Run(runId, Long.parseLong(parts[2]), Long.parseLong(parts[3])));
+            case "S" -> {
+                Run run = runs.get(runId);
+                if (run != null) run.pid = Long.parseLong(parts[2]);
+            }
+            case "F" -> runs.remove(runId);
+            default -> throw new IllegalArgumentException("unknown journal record: " + record);
+        }
+    }
+
+    public static class Run {
+        private final long runId;
+        private final long jobId;
+        private final long dispatchEpochMillis;
+        private Long pid;
+
+        Run(long runId, long jobId, long dispatchEpochMillis) {
+            this.runId = runId;
+            this.jobId = jobId;
+            this.dispatchEpochMillis = dispatchEpochMillis;
+        }
+
+        public long getRunId() {
+            return runId;
+        }
+
+        public long getJobId() {
+            return jobId;
+        }
+
+        public LocalDateTime getDispatchTime() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(dispatchEpochMillis), ZoneId.systemDefault());
+        }
+
+        public Long getPid() {
+            return pid;
+        }
+    }
+}
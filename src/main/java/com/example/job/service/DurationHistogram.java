@@ -0,0 +1,93 @@
+package com.example.job.service;
+
+import java.util.StringJoiner;
+
+// small log-bucketed histogram for execution durations (in ms), same idea as an HDR histogram
+// but without pulling in another dependency:
+// - recording is O(1), one array increment
+// - quantiles are read by walking the fixed bucket array, so size never grows with the run count
+// - two histograms can be merged by adding the bucket counts
+// 8 sub-buckets per power of two -> relative error of a reported quantile is about 9%
+public class DurationHistogram {
+
+    private static final int SUB_BUCKETS = 8;
+    // 2^36 ms is a bit over two years, longer durations end up in the last bucket
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKET_COUNT = 1 + MAX_EXPONENT * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+
+    public void record(long durationMillis) {
+        counts[bucketOf(durationMillis)]++;
+        totalCount++;
+    }
+
+    public void merge(DurationHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    // returns the representative value of the bucket holding the given quantile (0.0 - 1.0), null if empty
+    public Long quantile(double q) {
+        if (totalCount == 0) return null;
+        long rank = (long) Math.ceil(q * totalCount);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) return valueOf(i);
+        }
+        return valueOf(BUCKET_COUNT - 1);
+    }
+
+    // sparse "bucket:count,bucket:count" form, so the histogram fits into one column of the stats table
+    public String serialize() {
+        StringJoiner joiner = new StringJoiner(",");
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] != 0) joiner.add(i + ":" + counts[i]);
+        }
+        return joiner.toString();
+    }
+
+    public static DurationHistogram deserialize(String serialized) {
+        DurationHistogram histogram = new DurationHistogram();
+        if (serialized == null || serialized.isBlank()) return histogram;
+        for (String entry : serialized.split(",")) {
+            String[] parts = entry.split(":");
+            int bucket = Integer.parseInt(parts[0]);
+            long count = Long.parseLong(parts[1]);
+            if (bucket < 0 || bucket >= BUCKET_COUNT) continue;
+            histogram.counts[bucket] += count;
+            histogram.totalCount += count;
+        }
+        return histogram;
+    }
+
+    // bucket 0 holds 0ms, after that each power of two is split into SUB_BUCKETS linear steps
+    private static int bucketOf(long value) {
+        if (value <= 0) return 0;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) return BUCKET_COUNT - 1;
+        long base = 1L << exponent;
+        int sub = (int) (((value - base) * SUB_BUCKETS) >> exponent);
+        return 1 + exponent * SUB_BUCKETS + sub;
+    }
+
+    // middle of the bucket range, good enough for reporting percentiles
+    private static long valueOf(int bucket) {
+        if (bucket == 0) return 0;
+        int exponent = (bucket - 1) / SUB_BUCKETS;
+        int sub = (bucket - 1) % SUB_BUCKETS;
+        long base = 1L << exponent;
+        long lower = base + ((base * sub) / SUB_BUCKETS);
+        long upper = base + ((base * (sub + 1)) / SUB_BUCKETS);
+        return (lower + upper) / 2;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.job.service;
+
+import com.example.job.domain.Job;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// computes when jobs fire, used by the scheduler check and by the forecast endpoint
+// jobs with spreadSeconds set fire up to that many seconds after their cron time,
+// the offset comes from a hash of the job id so it stays the same for every fire
+// -> jobs sharing a schedule like "0 0 * * * *" don't all start in the same check
+// the scheduler only checks every 5 seconds, so offsets take effect in steps of 5 seconds
+@Component
+public class FireTimeService {
+
+    private static final Logger log = LoggerFactory.getLogger(FireTimeService.class);
+
+    // far more than the distinct expressions of the jobs in use, edited / deleted jobs leave old ones behind
+    private static final int CRON_CACHE_SIZE = 1024;
+
+    private final JobStatsService jobStatsService;
+    // parsing the same expressions on every check is wasted work, jobs share few distinct expressions
+    // least recently used expressions are dropped, so the cache doesn't grow with every expression ever seen
+    private final Map<String, CronExpression> cronCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CronExpression> eldest) {
+                    return size() > CRON_CACHE_SIZE;
+                }
+            });
+
+    public FireTimeService(JobStatsService jobStatsService) {
+        this.jobStatsService = jobStatsService;
+    }
+
+    // first (spread) fire time strictly after the given time, null if the job never fires
+    public LocalDateTime nextFireTime(Job job, LocalDateTime after) {
+        if (job.getCronExpression() == null) return null;
+        CronExpression cronExpression = cronCache.computeIfAbsent(job.getCronExpression(), CronExpression::parse);
+        long offset = spreadOffsetSeconds(job);
+        LocalDateTime next = cronExpression.next(after.minusSeconds(offset));
+        return next == null ? null : next.plusSeconds(offset);
+    }
+
+    public static long spreadOffsetSeconds(Job job) {
+        Integer spreadSeconds = job.getSpreadSeconds();
+        if (spreadSeconds == null || spreadSeconds <= 0) return 0;
+        // mix the id so consecutive ids don't end up on consecutive offsets
+        long hash = job.getId() * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return Math.floorMod(hash, (long) spreadSeconds);
+    }
+
+    // fire times of all given jobs in [from, from + window) plus a histogram of starts per bucket
+    // busy time per bucket is estimated with the median duration of each job's past runs,
+    // a run counts towards every bucket it overlaps with, up to the end of the window
+    public ScheduleForecast forecast(List<Job> jobs, LocalDateTime from, Duration window,
+                                     Duration bucket, int maxFiresPerJob) {
+        LocalDateTime to = from.plus(window);
+        long windowMillis = window.toMillis();
+        long bucketMillis = bucket.getSeconds() * 1000;
+        int bucketCount = (int) ((window.getSeconds() + bucket.getSeconds() - 1) / bucket.getSeconds());
+        long[] starts = new long[bucketCount];
+        long[] busyMillis = new long[bucketCount];
+        List<ScheduleForecast.JobFireTimes> jobFireTimes = new ArrayList<>();
+
+        // jobs with the same expression and offset fire at the same times, walk each schedule only once
+        Map<String, List<LocalDateTime>> fireTimesBySchedule = new HashMap<>();
+
+        for (Job job : jobs) {
+            if (!job.isStatus()) continue;
+            List<LocalDateTime> fireTimes;
+            try {
+                fireTimes = fireTimesBySchedule.computeIfAbsent(job.getCronExpression() + "|" + spreadOffsetSeconds(job),
+                        schedule -> fireTimes(job, from, to, maxFiresPerJob));
+            } catch (IllegalArgumentException e) {
+                log.trace("forecast(): skipping job with invalid cron expression: id=" + job.getId());
+                continue;
+            }
+
+            Long median = jobStatsService.getMedianDuration(job.getId());
+            for (LocalDateTime fireTime : fireTimes) {
+                int index = (int) (Duration.between(from, fireTime).getSeconds() / bucket.getSeconds());
+                starts[index]++;
+                if (median == null) continue;
+                long runStart = Duration.between(from, fireTime).toMillis();
+                long runEnd = Math.min(windowMillis, runStart + median);
+                for (int i = index; i < bucketCount && (long) i * bucketMillis < runEnd; i++) {
+                    long bucketStart = (long) i * bucketMillis;
+                    busyMillis[i] += Math.min(runEnd, bucketStart + bucketMillis) - Math.max(runStart, bucketStart);
+                }
+            }
+            jobFireTimes.add(new ScheduleForecast.JobFireTimes(job.getId(), job.getName(),
+                    spreadOffsetSeconds(job), fireTimes));
+        }
+
+        return new ScheduleForecast(from, to, bucket.getSeconds(), starts, busyMillis, jobFireTimes);
+    }
+
+    private List<LocalDateTime> fireTimes(Job job, LocalDateTime from, LocalDateTime to, int maxFires) {
+        List<LocalDateTime> fireTimes = new ArrayList<>();
+        // next() is strictly after, so start just before the window to include a fire right at from
+        LocalDateTime next = nextFireTime(job, from.minusNanos(1));
+        while (next != null && next.isBefore(to) && fireTimes.size() < maxFires) {
+            fireTimes.add(next);
+            next = nextFireTime(job, next);
+        }
+        return fireTimes;
+    }
+}
@@ -4,19 +4,34 @@ import com.example.job.dao.ExecutionRepository;
 import com.example.job.dao.JobRepository;
 import com.example.job.domain.Execution;
 import com.example.job.domain.Job;
+import com.example.job.domain.MisfirePolicy;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.scheduling.support.CronExpression;
 import java.util.Optional;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.List;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.time.Duration;
 import java.util.stream.Collectors;
 import java.util.concurrent.CompletableFuture;
@@ -31,14 +46,53 @@ public class JobService {
 
     private final JobRepository jobRepository;
     private final ExecutionRepository executionRepository;
+    private final JobStatsService jobStatsService;
+    private final DispatchJournal dispatchJournal;
+    private final AdmissionControl admissionControl;
+    private final ApplicationContext applicationContext;
+    private final FireTimeService fireTimeService;
     private final ExecutorService executorService = Executors.newCachedThreadPool();
+    // fires job timeouts, cancelled timeouts are removed right away instead of waiting in the queue
+    private final ScheduledThreadPoolExecutor timeoutScheduler = new ScheduledThreadPoolExecutor(1);
+    // runs currently executing by journal runId, used for timeouts and cancelJob
+    private final Map<Long, RunControl> runningJobs = new ConcurrentHashMap<>();
+    // jobs that were due but turned down by admission control, with the time they first became due
+    private final Map<Long, LocalDateTime> deferredJobs = new ConcurrentHashMap<>();
 
-    public JobService(JobRepository jobRepository, ExecutionRepository executionRepository) {
+    public JobService(JobRepository jobRepository, ExecutionRepository executionRepository,
+                      JobStatsService jobStatsService, DispatchJournal dispatchJournal,
+                      AdmissionControl admissionControl, ApplicationContext applicationContext,
+                      FireTimeService fireTimeService) {
         this.jobRepository = jobRepository;
         this.executionRepository = executionRepository;
+        this.jobStatsService = jobStatsService;
+        this.dispatchJournal = dispatchJournal;
+        this.admissionControl = admissionControl;
+        this.applicationContext = applicationContext;
+        this.fireTimeService = fireTimeService;
+        this.timeoutScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeoutScheduler.shutdownNow();
     }
 
     public ResponseEntity<?> executeJob(Long jid) {
+        return executeJob(jid, dispatchJournal.dispatched(jid));
+    }
+
+    // runId is the dispatch journal entry of this run, it gets finished whatever happens here
+    // so only runs interrupted by a jvm crash stay open in the journal
+    private ResponseEntity<?> executeJob(Long jid, long runId) {
+        try {
+            return runJob(jid, runId);
+        } finally {
+            dispatchJournal.finished(runId);
+        }
+    }
+
+    private ResponseEntity<?> runJob(Long jid, long runId) {
         Optional<Job> jobOptional = jobRepository.findById(jid);
         if (!jobOptional.isPresent()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -49,10 +103,15 @@ public class JobService {
 
         LocalDateTime startTime = LocalDateTime.now();
 
+        // in-jvm task takes precedence over the command
+        if (job.getTaskName() != null) {
+            return runTask(job, runId, startTime);
+        }
+
         // Check if null job script, if so -> success
         String command = job.getCommand();
         if (command == null) {
-            Execution execution = createAndSaveExecution(job, true, 0, "No job script provided.", startTime);
+            Execution execution = createAndSaveExecution(job, runId, true, 0, "No job script provided.", startTime);
             return ResponseEntity.ok(execution);
         }
 
@@ -61,8 +120,13 @@ public class JobService {
         int exitCode = -1;
         String output = "";
         String errorOutput = "";
+        String stopReason;
+        RunControl control = startControl(job, runId, false);
         try {
             process = Runtime.getRuntime().exec(command);
+            control.attach(process);
+            // pid is what lets a restart find the process again if we die while it runs
+            dispatchJournal.started(runId, process.pid());
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
             BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
 
@@ -77,6 +141,14 @@ public class JobService {
         } catch (IOException | InterruptedException | ExecutionException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("executeJob(): Exception - " + e.getMessage());
+        } finally {
+            stopReason = stopControl(runId, control);
+        }
+
+        // killed by timeout or cancel -> failed, whatever exit code the killed process left
+        if (stopReason != null) {
+            Execution execution = createAndSaveExecution(job, runId, false, -1, stopReason, startTime);
+            return ResponseEntity.ok(execution);
         }
 
         // success based on exit code
@@ -88,10 +160,137 @@ public class JobService {
             output = errorOutput.length() >= 10000 ? errorOutput.substring(0, 10000) : errorOutput;
         }
 
-        Execution execution = createAndSaveExecution(job, success, exitCode, output, startTime);
+        Execution execution = createAndSaveExecution(job, runId, success, exitCode, output, startTime);
+        return ResponseEntity.ok(execution);
+    }
+
+    // runs the JobTask bean named by the job on the current worker thread, no process involved
+    // exit codes follow the command runs: 0 success, 1 task threw (exception or error), -1 timed out / cancelled
+    private ResponseEntity<?> runTask(Job job, long runId, LocalDateTime startTime) {
+        JobTask task;
+        try {
+            task = applicationContext.getBean(job.getTaskName(), JobTask.class);
+        } catch (BeansException e) {
+            Execution execution = createAndSaveExecution(job, runId, false, -1, "No job task found with name: " + job.getTaskName(), startTime);
+            return ResponseEntity.ok(execution);
+        }
+
+        boolean success = false;
+        int exitCode = 1;
+        String output;
+        String stopReason;
+        RunControl control = startControl(job, runId, true);
+        try {
+            output = task.run(job);
+            success = true;
+            exitCode = 0;
+        } catch (Exception e) {
+            output = e.getMessage() == null ? e.toString() : e.getMessage();
+        } catch (Throwable e) {
+            // errors (StackOverflowError, NoClassDefFoundError, ...) end up as a failed execution too,
+            // otherwise the future of the worker swallows them and the run leaves no trace
+            log.error("runTask(): task of job failed with error: id=" + job.getId() + ", task=" + job.getTaskName(), e);
+            output = e.toString();
+        } finally {
+            stopReason = stopControl(runId, control);
+        }
+
+        if (stopReason != null) {
+            success = false;
+            exitCode = -1;
+            output = stopReason;
+        }
+        if (output == null) output = "";
+        if (output.length() >= 10000) output = output.substring(0, 10000);
+
+        Execution execution = createAndSaveExecution(job, runId, success, exitCode, output, startTime);
         return ResponseEntity.ok(execution);
     }
 
+    // stops all running runs of a job, the runs then record a failed execution themselves
+    public ResponseEntity<?> cancelJob(Long jid) {
+        int cancelled = 0;
+        for (RunControl control : runningJobs.values()) {
+            if (control.getJobId() == jid && control.stop("Job cancelled.")) cancelled++;
+        }
+        if (cancelled == 0) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("cancelJob(): No running execution found for job with id: " + jid);
+        }
+        log.trace("cancelJob(): cancelled " + cancelled + " running executions of job: id=" + jid);
+        return ResponseEntity.noContent().build();
+    }
+
+    // registers the run for cancelJob and arms the timeout of the job, if it has one
+    private RunControl startControl(Job job, long runId, boolean inJvm) {
+        RunControl control = new RunControl(job.getId(), Thread.currentThread(), inJvm);
+        runningJobs.put(runId, control);
+        Integer timeoutSeconds = job.getTimeoutSeconds();
+        if (timeoutSeconds != null && timeoutSeconds > 0) {
+            control.setTimeout(timeoutScheduler.schedule(() -> {
+                if (control.stop("Job timed out after " + timeoutSeconds + "s.")) {
+                    log.trace("startControl(): timed out job: id=" + job.getId());
+                }
+            }, timeoutSeconds, TimeUnit.SECONDS));
+        }
+        return control;
+    }
+
+    private String stopControl(long runId, RunControl control) {
+        runningJobs.remove(runId);
+        return control.finish();
+    }
+
+    // runs the dispatch journal still had open on startup were interrupted by a crash / kill of the jvm:
+    // - kill the child process (and whatever it started) if it is still around, nobody reads its output anymore
+    // - record the run as failed execution so it shows up in the history
+    // - rerun the job if its misfire policy asks for it, through admission control like scheduled runs
+    // a run is only finished in the journal once it is reconciled, a failing one is retried on the next startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileLostRuns() {
+        for (DispatchJournal.Run run : dispatchJournal.getRecoveredRuns()) {
+            try {
+                reconcileLostRun(run);
+                dispatchJournal.finished(run.getRunId());
+            } catch (RuntimeException e) {
+                log.error("reconcileLostRuns(): could not reconcile lost run of job: id=" + run.getJobId(), e);
+            }
+        }
+    }
+
+    private void reconcileLostRun(DispatchJournal.Run run) {
+        // the finish record is only queued after the execution was saved, a crash in between leaves
+        // a run open in the journal that actually finished -> nothing was lost
+        if (executionRepository.existsByRunId(run.getRunId())) {
+            log.trace("reconcileLostRuns(): run already has an execution: runId=" + run.getRunId());
+            return;
+        }
+
+        Long pid = run.getPid();
+        if (pid != null) {
+            ProcessHandle.of(pid).filter(ProcessHandle::isAlive).filter(process -> isOrphanOf(process, run)).ifPresent(process -> {
+                log.warn("reconcileLostRuns(): killing orphaned process: pid=" + pid + ", jobId=" + run.getJobId());
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly();
+            });
+        }
+
+        // job deleted in the meantime -> nothing to record
+        Optional<Job> jobOptional = jobRepository.findById(run.getJobId());
+        if (!jobOptional.isPresent()) return;
+        Job job = jobOptional.get();
+
+        // dispatch until now is downtime, not job duration, so it stays out of the duration stats
+        createAndSaveExecution(job, run.getRunId(), false, -1, "Lost run: scheduler stopped while the job was running.",
+                run.getDispatchTime(), false);
+        log.warn("reconcileLostRuns(): marked lost run of job: id=" + job.getId());
+
+        // rerun goes through admission control on the next check like any other due job,
+        // so a crash with many running jobs doesn't turn into one burst on startup
+        if (job.getMisfirePolicy() == MisfirePolicy.RERUN && job.isStatus()) {
+            deferredJobs.putIfAbsent(job.getId(), run.getDispatchTime());
+        }
+    }
 
     // Cron expression field with 6 fields, one additional field for seconds. Assumed its needed this way.
     // Cron expression explained:
@@ -106,32 +305,98 @@ public class JobService {
     // Additional: */int = "every int of x unit"
 
     // check jobs in interval of 5 seconds:
+    // due jobs go through admission control, jobs it turns down are kept and retried on the next check
     @Scheduled(cron = "*/5 * * * * *")
     public void checkAndExecuteJobs() {
         //System.out.println("Checking jobs...");
         log.trace("checkAndExecuteJobs(): checking jobs");
         LocalDateTime currentTime = LocalDateTime.now();
         List<Job> jobs = jobRepository.findAll();
+        List<Job> dueJobs = new ArrayList<>();
+        // since when a due job has been waiting, now for jobs that just became due
+        Map<Long, LocalDateTime> dueSince = new HashMap<>();
+        admissionControl.sample();
+
+        // drop deferrals of jobs that were deleted in the meantime
+        Set<Long> jobIds = jobs.stream().map(Job::getId).collect(Collectors.toSet());
+        deferredJobs.keySet().retainAll(jobIds);
 
         for (Job job : jobs) {
-            if (!job.isStatus()) continue;
+            // a disabled job doesn't owe a run anymore
+            if (!job.isStatus()) {
+                deferredJobs.remove(job.getId());
+                continue;
+            }
+            LocalDateTime deferredSince = deferredJobs.get(job.getId());
+            if (deferredSince != null) {
+                dueJobs.add(job);
+                dueSince.put(job.getId(), deferredSince);
+                // due again, the admission below defers it anew if there is still no slot
+                deferredJobs.remove(job.getId());
+                continue;
+            }
 
-            String cronExpressionStr = job.getCronExpression();
-            CronExpression cronExpression = CronExpression.parse(cronExpressionStr);
-            LocalDateTime nextExecutionTime = cronExpression.next(currentTime);
+            // includes the job's spread offset, if it has one
+            // an invalid cron only keeps this job from running, not the ones after it
+            LocalDateTime nextExecutionTime;
+            try {
+                nextExecutionTime = fireTimeService.nextFireTime(job, currentTime);
+            } catch (IllegalArgumentException e) {
+                log.warn("checkAndExecuteJobs(): skipping job with invalid cron expression: id=" + job.getId()
+                        + ", cron=" + job.getCronExpression());
+                continue;
+            }
+            if (nextExecutionTime == null) continue;
             Duration duration = Duration.between(currentTime, nextExecutionTime);
 
             if (duration.getSeconds() <= 5) {
-                //System.out.println("Executing Job with ID: " + job.getId());
-                log.trace("checkAndExecuteJobs(): executing job: id=" + job.getId());
-                executorService.submit(() -> {
-                    this.executeJob(job.getId());
-                });
+                dueJobs.add(job);
             }
         }
+
+        // higher priority first, so they get the free slots
+        // jobs waiting for a while gain priority, so low priority jobs get their turn under sustained load
+        dueJobs.sort(Comparator.comparingDouble((Job job) -> admissionControl.effectivePriority(job.getPriority(),
+                Duration.between(dueSince.getOrDefault(job.getId(), currentTime), currentTime))).reversed());
+        for (Job job : dueJobs) {
+            if (!admissionControl.tryAcquire()) {
+                deferredJobs.put(job.getId(), dueSince.getOrDefault(job.getId(), currentTime));
+                log.trace("checkAndExecuteJobs(): deferring job: id=" + job.getId() + ", limit=" + admissionControl.getLimit());
+                continue;
+            }
+            //System.out.println("Executing Job with ID: " + job.getId());
+            log.trace("checkAndExecuteJobs(): executing job: id=" + job.getId());
+            long runId = dispatchJournal.dispatched(job.getId());
+            executorService.submit(() -> {
+                long start = System.currentTimeMillis();
+                try {
+                    this.executeJob(job.getId(), runId);
+                } finally {
+                    admissionControl.release(job.getId(), System.currentTimeMillis() - start);
+                }
+            });
+        }
+    }
+
+    // pids get reused, so only treat the process as ours if it was started between the dispatch
+    // and the start of this jvm, if the start time is unknown better leave it alone
+    private boolean isOrphanOf(ProcessHandle process, DispatchJournal.Run run) {
+        Optional<Instant> processStart = process.info().startInstant();
+        Optional<Instant> jvmStart = ProcessHandle.current().info().startInstant();
+        if (!processStart.isPresent() || !jvmStart.isPresent()) return false;
+        Instant dispatched = run.getDispatchTime().atZone(ZoneId.systemDefault()).toInstant();
+        // start times are only exact to the clock tick, allow a second of slack
+        return !processStart.get().isBefore(dispatched.minusSeconds(1)) && processStart.get().isBefore(jvmStart.get());
+    }
+
+    private Execution createAndSaveExecution(Job job, long runId, boolean success, int exitCode, String output,
+                                             LocalDateTime startTime) {
+        return createAndSaveExecution(job, runId, success, exitCode, output, startTime, true);
     }
 
-    private Execution createAndSaveExecution(Job job, boolean success, int exitCode, String output, LocalDateTime startTime) {
+    // measured = false for executions whose start / end don't reflect how long the job ran
+    private Execution createAndSaveExecution(Job job, long runId, boolean success, int exitCode, String output,
+                                             LocalDateTime startTime, boolean measured) {
         Execution execution = new Execution();
 
         execution.setStartTime(startTime);
@@ -140,8 +405,10 @@ public class JobService {
         execution.setOutput(output);
         execution.setEndTime(LocalDateTime.now());
         execution.setJob(job);
+        execution.setRunId(runId);
 
         executionRepository.save(execution);
+        jobStatsService.record(execution, measured);
 
         return execution;
     }
@@ -0,0 +1,189 @@
+package com.example.job.service;
+
+import com.example.job.dao.ExecutionRepository;
+import com.example.job.dao.ExecutionSummary;
+import com.example.job.dao.JobStatsRepository;
+import com.example.job.domain.Execution;
+import com.example.job.domain.JobStats;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// keeps per job execution stats in memory and updates them as each execution finishes
+// stats are written to the jobStats table periodically instead of on every execution,
+// a crash only loses the updates since the last flush, a normal shutdown flushes everything
+@Component
+public class JobStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(JobStatsService.class);
+
+    private final JobStatsRepository jobStatsRepository;
+    private final ExecutionRepository executionRepository;
+    private final Map<Long, StatsEntry> entries = new ConcurrentHashMap<>();
+
+    public JobStatsService(JobStatsRepository jobStatsRepository, ExecutionRepository executionRepository) {
+        this.jobStatsRepository = jobStatsRepository;
+        this.executionRepository = executionRepository;
+    }
+
+    // called once per finished execution, O(1) apart from loading the persisted stats on first use
+    public void record(Execution execution) {
+        record(execution, true);
+    }
+
+    // measured = false counts the run (and failure) but keeps its duration out of the histogram,
+    // e.g. lost runs whose end is the restart of the scheduler
+    public void record(Execution execution, boolean measured) {
+        Long jid = execution.getJob().getId();
+        StatsEntry entry = entries.computeIfAbsent(jid, id -> load(id, execution.getId()));
+
+        long durationMillis = Duration.between(execution.getStartTime(), execution.getEndTime()).toMillis();
+        int outputSize = execution.getOutput() == null ? 0 : execution.getOutput().length();
+
+        synchronized (entry) {
+            JobStats stats = entry.stats;
+            stats.setRunCount(stats.getRunCount() + 1);
+            if (execution.getSuccess()) {
+                stats.setLastSuccessTime(execution.getEndTime());
+            } else {
+                stats.setFailureCount(stats.getFailureCount() + 1);
+                stats.setLastFailureTime(execution.getEndTime());
+            }
+            stats.setTotalOutputSize(stats.getTotalOutputSize() + outputSize);
+            if (measured) entry.histogram.record(durationMillis);
+            entry.dirty = true;
+        }
+    }
+
+    // loads (or seeds) the stats if the job didn't run since startup, so jobs with history never report zero
+    public Optional<JobStats> getStats(Long jid) {
+        StatsEntry entry = entries.computeIfAbsent(jid, id -> load(id, null));
+        synchronized (entry) {
+            return Optional.of(snapshot(entry));
+        }
+    }
+
+    // cheap lookup for the dispatch path, only jobs that already ran since startup are known
+    public Long getMedianDuration(Long jid) {
+        StatsEntry entry = entries.get(jid);
+        if (entry == null) return null;
+        synchronized (entry) {
+            return entry.histogram.quantile(0.50);
+        }
+    }
+
+    // stats would be wrong once the executions they were built from are gone
+    // runs inside compute() so a concurrent record() can't load the old row before it is deleted,
+    // and takes the entry lock so a flush that already picked up the entry can't write it back
+    public void reset(Long jid) {
+        entries.compute(jid, (id, entry) -> {
+            if (entry == null) {
+                deleteStats(id);
+            } else {
+                synchronized (entry) {
+                    entry.removed = true;
+                    deleteStats(id);
+                }
+            }
+            return null;
+        });
+        log.trace("reset(): reset stats of job: id=" + jid);
+    }
+
+    // saves under the entry lock, which keeps record() of that job waiting for one save at most
+    @Scheduled(fixedDelayString = "${job.stats.flush-interval-ms:30000}")
+    public void flush() {
+        for (StatsEntry entry : entries.values()) {
+            synchronized (entry) {
+                if (!entry.dirty || entry.removed) continue;
+                JobStats snapshot = snapshot(entry);
+                entry.dirty = false;
+                try {
+                    jobStatsRepository.save(snapshot);
+                } catch (RuntimeException e) {
+                    // keep the entry dirty so the next flush retries it
+                    entry.dirty = true;
+                    log.error("flush(): could not save stats of job: id=" + snapshot.getJobId(), e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void deleteStats(Long jid) {
+        if (jobStatsRepository.existsById(jid)) {
+            jobStatsRepository.deleteById(jid);
+        }
+    }
+
+    // excludeExecutionId: execution that is about to be recorded, so seeding doesn't count it twice
+    private StatsEntry load(Long jid, Long excludeExecutionId) {
+        Optional<JobStats> persisted = jobStatsRepository.findById(jid);
+        if (persisted.isPresent()) {
+            JobStats stats = persisted.get();
+            return new StatsEntry(stats, DurationHistogram.deserialize(stats.getDurationHistogram()));
+        }
+        // no row yet (e.g. history from before the stats existed) -> seed the counts from the executions once
+        // durations are only known from here on, so the histogram starts empty
+        StatsEntry entry = new StatsEntry(seed(jid, excludeExecutionId), new DurationHistogram());
+        entry.dirty = true;
+        return entry;
+    }
+
+    private JobStats seed(Long jid, Long excludeExecutionId) {
+        JobStats stats = new JobStats(jid);
+        // ids are generated from 1, so -1 excludes nothing
+        ExecutionSummary summary = executionRepository.summarizeByJobJid(jid,
+                excludeExecutionId == null ? -1L : excludeExecutionId);
+        if (summary == null || summary.getRunCount() == null || summary.getRunCount() == 0) return stats;
+        stats.setRunCount(summary.getRunCount());
+        stats.setFailureCount(summary.getFailureCount() == null ? 0 : summary.getFailureCount().longValue());
+        stats.setLastSuccessTime(summary.getLastSuccessTime());
+        stats.setLastFailureTime(summary.getLastFailureTime());
+        stats.setTotalOutputSize(summary.getTotalOutputSize() == null ? 0 : summary.getTotalOutputSize().longValue());
+        log.trace("seed(): seeded stats of job from " + stats.getRunCount() + " executions: id=" + jid);
+        return stats;
+    }
+
+    // copy handed out to callers / the repository, so the live entry is never touched outside the lock
+    private JobStats snapshot(StatsEntry entry) {
+        JobStats stats = entry.stats;
+        JobStats copy = new JobStats(stats.getJobId());
+        copy.setRunCount(stats.getRunCount());
+        copy.setFailureCount(stats.getFailureCount());
+        copy.setLastSuccessTime(stats.getLastSuccessTime());
+        copy.setLastFailureTime(stats.getLastFailureTime());
+        copy.setTotalOutputSize(stats.getTotalOutputSize());
+        copy.setP50Duration(entry.histogram.quantile(0.50));
+        copy.setP95Duration(entry.histogram.quantile(0.95));
+        copy.setP99Duration(entry.histogram.quantile(0.99));
+        copy.setDurationHistogram(entry.histogram.serialize());
+        copy.setUpdatedAt(LocalDateTime.now());
+        return copy;
+    }
+
+    private static class StatsEntry {
+        private final JobStats stats;
+        private final DurationHistogram histogram;
+        private volatile boolean dirty;
+        // set by reset(), a flush still holding the entry must not save it anymore
+        private boolean removed;
+
+        StatsEntry(JobStats stats, DurationHistogram histogram) {
+            this.stats = stats;
+            this.histogram = histogram;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.job.service;
+
+import com.example.job.domain.Job;
+
+// java job that runs inside the scheduler jvm instead of forking a process for job.command
+// implementations are spring beans, a job picks one by setting its taskName to the bean name, e.g.
+//
+// @Component("cleanupTask")
+// public class CleanupTask implements JobTask { ... }
+//
+// - the returned string is stored as execution output, like stdout of a command
+// - throwing fails the execution, the exception message becomes the output
+// - timeouts and cancellation interrupt the running thread, so long running tasks
+//   should check Thread.interrupted() or use interruptible calls
+public interface JobTask {
+
+    String run(Job job) throws Exception;
+
+}
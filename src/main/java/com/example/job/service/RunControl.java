@@ -0,0 +1,65 @@
+package com.example.job.service;
+
+import java.util.concurrent.Future;
+
+// handle to stop one running job run, either because its timeout passed or because it got cancelled
+// stopping destroys the child process (and everything it started) of a command run or interrupts the thread of a task run,
+// everything is synchronized so no interrupt can arrive after finish() returned
+class RunControl {
+
+    private final long jobId;
+    private final Thread worker;
+    private final boolean inJvm;
+    private Process process;
+    private Future<?> timeout;
+    private boolean finished;
+    private String stopReason;
+
+    RunControl(long jobId, Thread worker, boolean inJvm) {
+        this.jobId = jobId;
+        this.worker = worker;
+        this.inJvm = inJvm;
+    }
+
+    long getJobId() {
+        return jobId;
+    }
+
+    synchronized void attach(Process process) {
+        this.process = process;
+        // stopped while the process was still being started
+        if (stopReason != null) destroy(process);
+    }
+
+    synchronized void setTimeout(Future<?> timeout) {
+        this.timeout = timeout;
+    }
+
+    synchronized boolean stop(String reason) {
+        if (finished || stopReason != null) return false;
+        stopReason = reason;
+        if (process != null) {
+            destroy(process);
+        } else if (inJvm) {
+            worker.interrupt();
+        }
+        return true;
+    }
+
+    // returns the stop reason, null if the run ended by itself
+    synchronized String finish() {
+        finished = true;
+        // otherwise the timeout stays queued (holding this run) until it would have fired
+        if (timeout != null) timeout.cancel(false);
+        // clear the interrupt of a task that got stopped, the worker thread is reused by the pool
+        if (stopReason != null && inJvm) Thread.interrupted();
+        return stopReason;
+    }
+
+    // grandchildren of e.g. "bash script.sh" keep stdout / stderr open, so killing only the direct child
+    // would leave the output readers blocked until they exit
+    private static void destroy(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+}
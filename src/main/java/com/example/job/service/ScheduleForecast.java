@@ -0,0 +1,88 @@
+package com.example.job.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// result of FireTimeService.forecast, only built for the response so there are no setters
+// starts[i] / busyMillis[i] cover the bucket from + i * bucketSeconds
+public class ScheduleForecast {
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final long bucketSeconds;
+    private final long[] starts;
+    private final long[] busyMillis;
+    private final List<JobFireTimes> jobs;
+
+    public ScheduleForecast(LocalDateTime from, LocalDateTime to, long bucketSeconds, long[] starts,
+                            long[] busyMillis, List<JobFireTimes> jobs) {
+        this.from = from;
+        this.to = to;
+        this.bucketSeconds = bucketSeconds;
+        this.starts = starts;
+        this.busyMillis = busyMillis;
+        this.jobs = jobs;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public long getBucketSeconds() {
+        return bucketSeconds;
+    }
+
+    public long[] getStarts() {
+        return starts;
+    }
+
+    public long[] getBusyMillis() {
+        return busyMillis;
+    }
+
+    // highest number of starts in one bucket, what the spread should bring down
+    public long getPeakStarts() {
+        long peak = 0;
+        for (long count : starts) peak = Math.max(peak, count);
+        return peak;
+    }
+
+    public List<JobFireTimes> getJobs() {
+        return jobs;
+    }
+
+    public static class JobFireTimes {
+
+        private final long jobId;
+        private final String name;
+        private final long spreadOffsetSeconds;
+        private final List<LocalDateTime> fireTimes;
+
+        public JobFireTimes(long jobId, String name, long spreadOffsetSeconds, List<LocalDateTime> fireTimes) {
+            this.jobId = jobId;
+            this.name = name;
+            this.spreadOffsetSeconds = spreadOffsetSeconds;
+            this.fireTimes = fireTimes;
+        }
+
+        public long getJobId() {
+            return jobId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSpreadOffsetSeconds() {
+            return spreadOffsetSeconds;
+        }
+
+        public List<LocalDateTime> getFireTimes() {
+            return fireTimes;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.job.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlTest {
+
+    private static final long MEDIAN = 1000;
+    private static final long FAST = 900;
+    private static final long SLOW = 5000;
+    private static final long INTERVAL = 5000;
+
+    // every job has a median of 1s, no repository needed
+    private final JobStatsService jobStatsService = new JobStatsService(null, null) {
+        @Override
+        public Long getMedianDuration(Long jid) {
+            return MEDIAN;
+        }
+    };
+
+    private long now = 1_000_000;
+
+    @Test
+    void acquireStopsAtLimit() {
+        AdmissionControl admissionControl = admissionControl(1, 64, 3);
+
+        assertTrue(admissionControl.tryAcquire());
+        assertTrue(admissionControl.tryAcquire());
+        assertTrue(admissionControl.tryAcquire());
+        assertFalse(admissionControl.tryAcquire());
+        assertEquals(3, admissionControl.getInFlight());
+
+        admissionControl.release(1, FAST);
+        assertTrue(admissionControl.tryAcquire());
+    }
+
+    @Test
+    void limitGrowsByOnePerLimitCompletionsWhileFullyUsed() {
+        AdmissionControl admissionControl = admissionControl(1, 64, 4);
+
+        // +1/limit per completion -> a bit more than limit completions at full use add one slot
+        for (int i = 0; i < 5; i++) {
+            fill(admissionControl);
+            admissionControl.release(1, FAST);
+        }
+        assertEquals(5, admissionControl.getLimit());
+    }
+
+    @Test
+    void limitDoesntGrowWhileUnused() {
+        AdmissionControl admissionControl = admissionControl(1, 64, 4);
+
+        for (int i = 0; i < 100; i++) {
+            admissionControl.tryAcquire();
+            admissionControl.release(1, FAST);
+        }
+        assertEquals(4, admissionControl.getLimit());
+    }
+
+    @Test
+    void limitStopsAtMaxConcurrency() {
+        AdmissionControl admissionControl = admissionControl(1, 5, 4);
+
+        for (int i = 0; i < 100; i++) {
+            fill(admissionControl);
+            admissionControl.release(1, FAST);
+        }
+        assertEquals(5, admissionControl.getLimit());
+    }
+
+    @Test
+    void slowCompletionShrinksLimitByTenPercent() {
+        AdmissionControl admissionControl = admissionControl(1, 64, 20);
+
+        admissionControl.tryAcquire();
+        admissionControl.release(1, SLOW);
+        assertEquals(18, admissionControl.getLimit());
+    }
+
+    @Test
+    void limitStopsAtMinConcurrency() {
+        AdmissionControl admissionControl = admissionControl(2, 64, 20);
+
+        for (int i = 0; i < 100; i++) {
+            now += INTERVAL;
+            admissionControl.tryAcquire();
+            admissionControl.release(1, SLOW);
+        }
+        assertEquals(2, admissionControl.getLimit());
+    }
+
+    @Test
+    void decreaseAtMostOncePerInterval() {
+        AdmissionControl admissionControl = admissionControl(1, 64, 20);
+
+        // a burst of slow completions only counts once
+        for (int i = 0; i < 10; i++) {
+            now += 100;
+            admissionControl.tryAcquire();
+            admissionControl.release(1, SLOW);
+        }
+        assertEquals(18, admissionControl.getLimit());
+    }
+
+    @Test
+    void decreaseToleratesSchedulerJitter() {
+        AdmissionControl admissionControl = admissionControl(1, 200, 100);
+
+        admissionControl.tryAcquire();
+        admissionControl.release(1, SLOW);
+        assertEquals(90, admissionControl.getLimit());
+
+        // next check a bit earlier than the interval still decreases
+        now += INTERVAL - 200;
+        admissionControl.tryAcquire();
+        admissionControl.release(1, SLOW);
+        assertEquals(81, admissionControl.getLimit());
+
+        // half an interval is not enough
+        now += INTERVAL / 2;
+        admissionControl.tryAcquire();
+        admissionControl.release(1, SLOW);
+        assertEquals(81, admissionControl.getLimit());
+    }
+
+    @Test
+    void waitingJobsGainPriority() {
+        AdmissionControl admissionControl = admissionControl(1, 64, 4);
+
+        assertEquals(3.0, admissionControl.effectivePriority(3, Duration.ZERO));
+        assertEquals(4.0, admissionControl.effectivePriority(3, Duration.ofSeconds(60)));
+        // a low priority job deferred long enough overtakes a fresh high priority one
+        assertTrue(admissionControl.effectivePriority(0, Duration.ofMinutes(11))
+                > admissionControl.effectivePriority(10, Duration.ZERO));
+    }
+
+    private AdmissionControl admissionControl(int minConcurrency, int maxConcurrency, int initialLimit) {
+        return new AdmissionControl(jobStatsService, minConcurrency, maxConcurrency, 1.5, 256, 2.0,
+                INTERVAL, 60, initialLimit, () -> now);
+    }
+
+    private static void fill(AdmissionControl admissionControl) {
+        while (admissionControl.tryAcquire()) {
+            // take every free slot
+        }
+    }
+}
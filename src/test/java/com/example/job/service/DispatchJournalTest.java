@@ -0,0 +1,116 @@
+package com.example.job.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DispatchJournalTest {
+
+    private static final int SIZE = 4096;
+
+    @Test
+    void replaySkipsFinishedRunsAndTornRecord(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("dispatch.journal");
+        // last record has no newline -> torn write, followed by the zero padding of the mapped file
+        writeJournal(path, "D|1|5|1000\nS|1|42\nD|2|6|2000\nF|2\nD|3|7|30");
+
+        DispatchJournal journal = open(path);
+        List<DispatchJournal.Run> runs = journal.getRecoveredRuns();
+        journal.close();
+
+        assertEquals(1, runs.size());
+        assertEquals(1L, runs.get(0).getRunId());
+        assertEquals(5L, runs.get(0).getJobId());
+        assertEquals(42L, runs.get(0).getPid());
+    }
+
+    @Test
+    void replaySkipsUnreadableRecords(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("dispatch.journal");
+        writeJournal(path, "X|1\nD|4|8|1000\nD|broken\n");
+
+        DispatchJournal journal = open(path);
+        List<DispatchJournal.Run> runs = journal.getRecoveredRuns();
+        journal.close();
+
+        assertEquals(1, runs.size());
+        assertEquals(4L, runs.get(0).getRunId());
+    }
+
+    @Test
+    void recoveredRunsStayUntilFinished(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("dispatch.journal");
+        writeJournal(path, "D|1|5|1000\n");
+
+        // not reconciled -> still there on the next start
+        open(path).close();
+        DispatchJournal journal = open(path);
+        assertEquals(1, journal.getRecoveredRuns().size());
+
+        journal.finished(1);
+        journal.close();
+
+        DispatchJournal reopened = open(path);
+        assertTrue(reopened.getRecoveredRuns().isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    void newRunIdsDontCollideWithRecoveredOnes(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("dispatch.journal");
+        writeJournal(path, "D|9000000000000000000|5|1000\n");
+
+        DispatchJournal journal = open(path);
+        long runId = journal.dispatched(5);
+        journal.close();
+
+        assertTrue(runId > 9000000000000000000L);
+    }
+
+    @Test
+    void fullJournalIsRewrittenWithOpenRuns(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("dispatch.journal");
+        // a few records fill 256 bytes, so this rewrites many times
+        DispatchJournal journal = new DispatchJournal(path.toString(), 256);
+        journal.open();
+        long open = journal.dispatched(7);
+        journal.started(open, 1234);
+        for (int i = 0; i < 200; i++) {
+            long runId = journal.dispatched(i);
+            journal.started(runId, i);
+            journal.finished(runId);
+        }
+        journal.close();
+
+        DispatchJournal reopened = new DispatchJournal(path.toString(), 256);
+        reopened.open();
+        List<DispatchJournal.Run> runs = reopened.getRecoveredRuns();
+        reopened.close();
+
+        assertEquals(1, runs.size());
+        assertEquals(open, runs.get(0).getRunId());
+        assertEquals(7L, runs.get(0).getJobId());
+        assertEquals(1234L, runs.get(0).getPid());
+    }
+
+    private static DispatchJournal open(Path path) throws Exception {
+        DispatchJournal journal = new DispatchJournal(path.toString(), SIZE);
+        journal.open();
+        return journal;
+    }
+
+    private static void writeJournal(Path path, String records) throws Exception {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(records.getBytes(StandardCharsets.UTF_8));
+        content.write(new byte[SIZE - content.size()]);
+        Files.write(path, content.toByteArray());
+    }
+}
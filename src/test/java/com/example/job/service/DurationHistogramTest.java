@@ -0,0 +1,77 @@
+package com.example.job.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DurationHistogramTest {
+
+    @Test
+    void emptyHistogramHasNoQuantiles() {
+        DurationHistogram histogram = new DurationHistogram();
+        assertNull(histogram.quantile(0.5));
+        assertEquals("", histogram.serialize());
+    }
+
+    @Test
+    void zeroDurationsStayInFirstBucket() {
+        DurationHistogram histogram = new DurationHistogram();
+        histogram.record(0);
+        histogram.record(-5);
+        assertEquals(0L, histogram.quantile(0.99));
+    }
+
+    @Test
+    void quantilesAreWithinBucketError() {
+        DurationHistogram histogram = new DurationHistogram();
+        for (int i = 1; i <= 1000; i++) histogram.record(i);
+
+        assertWithin(500, histogram.quantile(0.50));
+        assertWithin(950, histogram.quantile(0.95));
+        assertWithin(990, histogram.quantile(0.99));
+    }
+
+    @Test
+    void hugeDurationsEndUpInLastBucket() {
+        DurationHistogram histogram = new DurationHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertTrue(histogram.quantile(1.0) > 0);
+    }
+
+    @Test
+    void serializeRoundTrip() {
+        DurationHistogram histogram = new DurationHistogram();
+        for (int i = 0; i < 500; i++) histogram.record(i * 7L);
+
+        DurationHistogram restored = DurationHistogram.deserialize(histogram.serialize());
+
+        assertEquals(histogram.getTotalCount(), restored.getTotalCount());
+        assertEquals(histogram.quantile(0.50), restored.quantile(0.50));
+        assertEquals(histogram.quantile(0.99), restored.quantile(0.99));
+        assertEquals(histogram.serialize(), restored.serialize());
+    }
+
+    @Test
+    void mergeAddsCounts() {
+        DurationHistogram fast = new DurationHistogram();
+        DurationHistogram slow = new DurationHistogram();
+        for (int i = 0; i < 100; i++) {
+            fast.record(10);
+            slow.record(10000);
+        }
+
+        fast.merge(slow);
+
+        assertEquals(200, fast.getTotalCount());
+        assertWithin(10, fast.quantile(0.25));
+        assertWithin(10000, fast.quantile(0.75));
+    }
+
+    // 8 sub buckets per power of two -> reported values are off by less than 12.5%
+    private static void assertWithin(long expected, Long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.125,
+                "expected ~" + expected + " but was " + actual);
+    }
+}
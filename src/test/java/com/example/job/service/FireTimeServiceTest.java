@@ -0,0 +1,185 @@
+package com.example.job.service;
+
+import com.example.job.domain.Job;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FireTimeServiceTest {
+
+    private static final LocalDateTime TEN = LocalDateTime.of(2024, 1, 1, 10, 0, 0);
+
+    // no repository needed, median lookups only touch the in-memory stats (empty here)
+    private final FireTimeService fireTimeService = new FireTimeService(new JobStatsService(null, null));
+
+    @Test
+    void noSpreadWithoutSpreadSeconds() {
+        Job job = job(1, "0 0 * * * *", null);
+        assertEquals(0, FireTimeService.spreadOffsetSeconds(job));
+        job.setSpreadSeconds(0);
+        assertEquals(0, FireTimeService.spreadOffsetSeconds(job));
+    }
+
+    @Test
+    void spreadOffsetIsStableAndInRange() {
+        Set<Long> offsets = new HashSet<>();
+        for (long id = 1; id <= 1000; id++) {
+            Job job = job(id, "0 0 * * * *", 300);
+            long offset = FireTimeService.spreadOffsetSeconds(job);
+            assertTrue(offset >= 0 && offset < 300, "offset out of range: " + offset);
+            assertEquals(offset, FireTimeService.spreadOffsetSeconds(job));
+            offsets.add(offset);
+        }
+        // consecutive ids should land all over the window, not on a few offsets
+        assertTrue(offsets.size() > 200, "only " + offsets.size() + " distinct offsets");
+    }
+
+    @Test
+    void nextFireTimeWithoutSpreadFollowsCron() {
+        Job job = job(1, "0 */10 * * * *", null);
+        assertEquals(TEN.plusMinutes(10), fireTimeService.nextFireTime(job, TEN.plusMinutes(5)));
+        // strictly after
+        assertEquals(TEN.plusMinutes(20), fireTimeService.nextFireTime(job, TEN.plusMinutes(10)));
+    }
+
+    @Test
+    void nextFireTimeIsShiftedByOffset() {
+        Job job = job(42, "0 0 * * * *", 3600);
+        long offset = FireTimeService.spreadOffsetSeconds(job);
+        LocalDateTime shifted = TEN.plusSeconds(offset);
+
+        assertEquals(shifted, fireTimeService.nextFireTime(job, shifted.minusSeconds(1)));
+        assertEquals(shifted.plusHours(1), fireTimeService.nextFireTime(job, shifted));
+    }
+
+    @Test
+    void jobWithoutCronNeverFires() {
+        assertNull(fireTimeService.nextFireTime(job(1, null, null), TEN));
+    }
+
+    @Test
+    void forecastCountsStartsPerBucket() {
+        List<Job> jobs = List.of(
+                job(1, "0 */10 * * * *", null),
+                job(2, "0 */10 * * * *", null),
+                disabled(job(3, "0 */10 * * * *", null)));
+
+        ScheduleForecast forecast = fireTimeService.forecast(jobs, TEN, Duration.ofHours(1), Duration.ofMinutes(10), 100);
+
+        assertEquals(6, forecast.getStarts().length);
+        for (long starts : forecast.getStarts()) assertEquals(2, starts);
+        for (long busy : forecast.getBusyMillis()) assertEquals(0, busy);
+        assertEquals(2, forecast.getPeakStarts());
+
+        assertEquals(2, forecast.getJobs().size());
+        List<LocalDateTime> fireTimes = forecast.getJobs().get(0).getFireTimes();
+        assertEquals(6, fireTimes.size());
+        // a fire right at the start of the window is included
+        assertEquals(TEN, fireTimes.get(0));
+        assertEquals(TEN.plusMinutes(50), fireTimes.get(5));
+    }
+
+    @Test
+    void forecastWithPartialLastBucket() {
+        List<Job> jobs = List.of(job(1, "0 */10 * * * *", null));
+
+        // 3600s / 420s -> 9 buckets, the last one only partly inside the window
+        ScheduleForecast forecast = fireTimeService.forecast(jobs, TEN, Duration.ofHours(1), Duration.ofMinutes(7), 100);
+
+        assertEquals(9, forecast.getStarts().length);
+        // 10:50 is 3000s in -> bucket 7
+        assertEquals(1, forecast.getStarts()[7]);
+        assertEquals(0, forecast.getStarts()[8]);
+    }
+
+    @Test
+    void forecastStopsAtMaxFiresPerJob() {
+        List<Job> jobs = List.of(job(1, "* * * * * *", null));
+
+        ScheduleForecast forecast = fireTimeService.forecast(jobs, TEN, Duration.ofHours(1), Duration.ofMinutes(1), 3);
+
+        assertEquals(3, forecast.getJobs().get(0).getFireTimes().size());
+        assertEquals(3, forecast.getStarts()[0]);
+    }
+
+    @Test
+    void forecastSpreadsJobsSharingASchedule() {
+        List<Job> jobs = List.of(job(1, "0 0 * * * *", 600), job(2, "0 0 * * * *", 600));
+
+        ScheduleForecast forecast = fireTimeService.forecast(jobs, TEN, Duration.ofHours(1), Duration.ofSeconds(1), 100);
+
+        for (ScheduleForecast.JobFireTimes jobFireTimes : forecast.getJobs()) {
+            assertEquals(1, jobFireTimes.getFireTimes().size());
+            assertEquals(TEN.plusSeconds(jobFireTimes.getSpreadOffsetSeconds()), jobFireTimes.getFireTimes().get(0));
+        }
+    }
+
+    @Test
+    void forecastSpreadsBusyTimeOverOverlappedBuckets() {
+        // 2.5 minutes per run
+        FireTimeService withMedian = new FireTimeService(medianOf(150_000L));
+        List<Job> jobs = List.of(job(1, "0 0 * * * *", null));
+
+        ScheduleForecast forecast = withMedian.forecast(jobs, TEN, Duration.ofHours(1), Duration.ofMinutes(1), 100);
+
+        assertEquals(60_000, forecast.getBusyMillis()[0]);
+        assertEquals(60_000, forecast.getBusyMillis()[1]);
+        assertEquals(30_000, forecast.getBusyMillis()[2]);
+        assertEquals(0, forecast.getBusyMillis()[3]);
+    }
+
+    @Test
+    void forecastCapsBusyTimeAtWindowEnd() {
+        // an hour per run, starting 10 minutes before the end of the window
+        FireTimeService withMedian = new FireTimeService(medianOf(3_600_000L));
+        List<Job> jobs = List.of(job(1, "0 50 * * * *", null));
+
+        ScheduleForecast forecast = withMedian.forecast(jobs, TEN, Duration.ofHours(1), Duration.ofMinutes(7), 100);
+
+        // 10:50 - 10:56 in bucket 7, 10:56 - 11:00 in the partial bucket 8
+        long total = 0;
+        for (long busy : forecast.getBusyMillis()) total += busy;
+        assertEquals(600_000, total);
+        assertEquals(360_000, forecast.getBusyMillis()[7]);
+        assertEquals(240_000, forecast.getBusyMillis()[8]);
+    }
+
+    @Test
+    void forecastSkipsInvalidCron() {
+        List<Job> jobs = List.of(job(1, "not a cron", null), job(2, "0 */10 * * * *", null));
+
+        ScheduleForecast forecast = fireTimeService.forecast(jobs, TEN, Duration.ofHours(1), Duration.ofMinutes(10), 100);
+
+        assertEquals(1, forecast.getJobs().size());
+        assertEquals(2L, forecast.getJobs().get(0).getJobId());
+    }
+
+    private static Job job(long id, String cronExpression, Integer spreadSeconds) {
+        Job job = new Job(id, "job" + id, "test job", null, true, null, null, cronExpression);
+        job.setSpreadSeconds(spreadSeconds);
+        return job;
+    }
+
+    // every job has the given median, no repository needed
+    private static JobStatsService medianOf(Long median) {
+        return new JobStatsService(null, null) {
+            @Override
+            public Long getMedianDuration(Long jid) {
+                return median;
+            }
+        };
+    }
+
+    private static Job disabled(Job job) {
+        job.setStatus(false);
+        return job;
+    }
+}
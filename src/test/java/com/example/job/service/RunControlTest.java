@@ -0,0 +1,123 @@
+package com.example.job.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RunControlTest {
+
+    @Test
+    void stopBeforeAttachDestroysProcess() throws Exception {
+        RunControl control = new RunControl(1, Thread.currentThread(), false);
+        assertTrue(control.stop("Job cancelled."));
+
+        Process process = new ProcessBuilder("sleep", "30").start();
+        control.attach(process);
+
+        assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+        assertEquals("Job cancelled.", control.finish());
+    }
+
+    @Test
+    void stopDestroysWholeProcessTree() throws Exception {
+        RunControl control = new RunControl(1, Thread.currentThread(), false);
+        Process process = new ProcessBuilder("bash", "-c", "sleep 30 & wait").start();
+        control.attach(process);
+
+        List<ProcessHandle> children = List.of();
+        for (int i = 0; i < 50 && children.isEmpty(); i++) {
+            Thread.sleep(20);
+            children = process.descendants().collect(Collectors.toList());
+        }
+        assertFalse(children.isEmpty());
+
+        assertTrue(control.stop("Timed out."));
+        assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+        for (ProcessHandle child : children) {
+            child.onExit().get(5, TimeUnit.SECONDS);
+            assertFalse(child.isAlive());
+        }
+    }
+
+    @Test
+    void stopAfterFinishReturnsFalse() {
+        RunControl control = new RunControl(1, Thread.currentThread(), true);
+
+        assertNull(control.finish());
+        assertFalse(control.stop("Job cancelled."));
+        // a late stop must neither interrupt the reused worker nor show up as the stop reason
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertNull(control.finish());
+    }
+
+    @Test
+    void secondStopReturnsFalse() {
+        RunControl control = new RunControl(1, Thread.currentThread(), false);
+
+        assertTrue(control.stop("Timed out."));
+        assertFalse(control.stop("Job cancelled."));
+        assertEquals("Timed out.", control.finish());
+    }
+
+    @Test
+    void stopInterruptsTaskAndFinishClearsInterrupt() {
+        RunControl control = new RunControl(1, Thread.currentThread(), true);
+
+        assertTrue(control.stop("Timed out."));
+        assertTrue(Thread.currentThread().isInterrupted());
+
+        assertEquals("Timed out.", control.finish());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    void timeoutStopsBlockedTask() throws Exception {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        try {
+            CountDownLatch never = new CountDownLatch(1);
+            RunControl control = new RunControl(1, Thread.currentThread(), true);
+            control.setTimeout(scheduler.schedule(() -> control.stop("Timed out."), 50, TimeUnit.MILLISECONDS));
+
+            boolean interrupted = false;
+            try {
+                never.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+
+            assertTrue(interrupted);
+            assertEquals("Timed out.", control.finish());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void finishCancelsTimeout() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+        try {
+            RunControl control = new RunControl(1, Thread.currentThread(), true);
+            ScheduledFuture<?> timeout = scheduler.schedule(() -> control.stop("Timed out."), 1, TimeUnit.HOURS);
+            control.setTimeout(timeout);
+
+            assertNull(control.finish());
+
+            assertTrue(timeout.isCancelled());
+            // nothing left queued that holds on to the finished run
+            assertTrue(scheduler.getQueue().isEmpty());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}